@@ -43,6 +43,7 @@ public class ExtractGitInfo extends Task {
     private File _baseDir;
     private String _propertyPrefix;
     private boolean _displayInfo;
+    private boolean _bare;
 
     public File getBaseDir() {
         return _baseDir;
@@ -62,7 +63,7 @@ public class ExtractGitInfo extends Task {
         try {
             final StopWatch watch = new StopWatch();
             watch.start();
-            final GitInfo info = GitInfoExtractor.extractInfo( getBaseDir() );
+            final GitInfo info = GitInfoExtractor.extractInfo( getBaseDir(), isBare() );
             watch.stop();
             
             log( "This is GitAnt " + loadVersion() + " - 2009-" + Calendar.getInstance().get( Calendar.YEAR ) + " by Marcus Thiesen (marcus@thiesen.org) and contributors" );
@@ -186,5 +187,13 @@ public class ExtractGitInfo extends Task {
         return _displayInfo;
     }
 
+    public void setBare( final boolean bare ) {
+        _bare = bare;
+    }
+
+    public boolean isBare() {
+        return _bare;
+    }
+
 
 }
@@ -37,7 +37,6 @@ import org.eclipse.jgit.lib.IndexDiff;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
-import org.eclipse.jgit.lib.RepositoryBuilder;
 import org.eclipse.jgit.revwalk.RevCommit;
 import org.eclipse.jgit.revwalk.RevObject;
 import org.eclipse.jgit.revwalk.RevTag;
@@ -60,11 +59,8 @@ public class GitInfoExtractor {
         private final RevTree _tree;
         private final Repository _r;
 
-        private NotIsGitlink( final Repository r ) throws IOException {
+        private NotIsGitlink( final Repository r, final RevCommit head ) {
             _r = r;
-            final RevCommit head = getHead( r );
-            
-            
             _tree = head.getTree();
         }
 
@@ -84,29 +80,43 @@ public class GitInfoExtractor {
 
 
     public static GitInfo extractInfo( final File dir ) throws IOException {
+        return extractInfo( dir, false );
+    }
+
+    /**
+     * @param dir a working tree, a <code>.git</code> directory or file, a linked worktree
+     *  or a bare repository
+     * @param bare do not look at the working tree at all. The working copy is reported as
+     *  clean and the last tag is dirty only if HEAD is not the tagged commit. This is also
+     *  what happens if the repository has no working tree.
+     */
+    public static GitInfo extractInfo( final File dir, final boolean bare ) throws IOException {
         if ( !dir.exists() ) {
             throw new BuildException("No such directory: " + dir );
         }
         
-        final RepositoryBuilder builder = new RepositoryBuilder();
-        final Repository r = builder.setGitDir( dir )
-            .readEnvironment() // scan environment GIT_* variables
-            .findGitDir() // scan up the file system tree
-            .build();
+        final RepositoryLocation location = RepositoryLocation.valueOf( dir );
+        final Repository r = location.build( bare );
         
         try {
-            final String currentBranch = r.getBranch();
+            final String currentBranch = location.getBranch( r );
 
-            final RevCommit head = getHead( r );
+            final RevCommit head = getCommit( r, location.resolveHead( r ) );
             final String lastRevCommit = getRevCommitId( head );
             final String lastRevCommitShort = getRevCommitIdShort( head, r );
             final Date lastRevCommitDate = getRevCommitDate( head );
 
-            final boolean workingCopyDirty = isDirty(null, r);
-
-            final CustomTag lastRevTag = getLastRevTag(r);
+            final CustomTag lastRevTag = getLastRevTag( r, head );
 
-            final boolean lastRevTagDirty = isDirty(lastRevTag, r);
+            final boolean workingCopyDirty;
+            final boolean lastRevTagDirty;
+            if ( bare || r.isBare() ) {
+                workingCopyDirty = false;
+                lastRevTagDirty = lastRevTag != null && !head.getId().equals( getTaggedCommitId( lastRevTag ) );
+            } else {
+                workingCopyDirty = isDirty( null, head, r );
+                lastRevTagDirty = isDirty( lastRevTag, head, r );
+            }
 
             return GitInfo.valueOf( currentBranch, lastRevCommit, workingCopyDirty, lastRevTag, lastRevTagDirty, lastRevCommitShort, lastRevCommitDate );
 
@@ -116,11 +126,9 @@ public class GitInfoExtractor {
     }
 
 
-    private static CustomTag getLastRevTag( final Repository r ) throws IOException {
+    private static CustomTag getLastRevTag( final Repository r, final RevCommit head ) throws IOException {
         final ImmutableMultimap<ObjectId, CustomTag> tagsByObjectId = getTagsByTargetCommitObjectId( r );
 
-        final RevCommit head = getHead( r );
-
         final ImmutableCollection<CustomTag> tags = findFirstReachable(r, tagsByObjectId, head);
 
         if ( !tags.isEmpty() ) {
@@ -163,7 +171,8 @@ public class GitInfoExtractor {
         for ( final Entry<String,Ref> entry : tags.entrySet() ) {
             final String tagName = entry.getKey();
             final Ref ref = entry.getValue();
-            final ObjectId id = ref.getPeeledObjectId() != null ? ref.getPeeledObjectId() : ref.getObjectId();
+            // packed refs carry the peeled commit, but we want the tag object itself for the tagger
+            final ObjectId id = ref.getObjectId();
             
             final RevObject obj = lookupAnyTag( r, id );
 
@@ -180,9 +189,12 @@ public class GitInfoExtractor {
         return tagsByObjectId.build();
     }
 
-    private static RevCommit getHead( final Repository r ) throws IOException {
-        final ObjectId headId = r.resolve( Constants.HEAD );
-        return getCommit( r, headId );
+    private static ObjectId getTaggedCommitId( final CustomTag tag ) {
+        final RevObject obj = tag.getObject();
+        if ( obj.getType() == Constants.OBJ_TAG ) {
+            return ( (RevTag) obj ).getObject().getId();
+        }
+        return obj.getId();
     }
 
     private static RevCommit getCommit( final Repository r, final AnyObjectId id ) throws MissingObjectException, IncorrectObjectTypeException, IOException {
@@ -230,15 +242,15 @@ public class GitInfoExtractor {
         return new Date( commit.getCommitTime() );
     }
 
-    private static boolean isDirty( final CustomTag lastRevTag, final Repository r ) throws MissingObjectException, IncorrectObjectTypeException, CorruptObjectException, IOException {
+    private static boolean isDirty( final CustomTag lastRevTag, final RevCommit head, final Repository r ) throws MissingObjectException, IncorrectObjectTypeException, CorruptObjectException, IOException {
         final WorkingTreeIterator iterator = new FileTreeIterator( r ); 
-        final IndexDiff d = lastRevTag == null ? new IndexDiff( r, Constants.HEAD, iterator ) : new IndexDiff( r, lastRevTag.getObjectId(), iterator );
+        final IndexDiff d = new IndexDiff( r, lastRevTag == null ? head.getId() : lastRevTag.getObjectId(), iterator );
         d.diff();
         
         @SuppressWarnings( "unchecked" )
         final Iterable<String> allModifications = 
                 Iterables.filter( Iterables.concat( d.getAdded(), d.getModified(), d.getChanged(), d.getMissing(), d.getRemoved() ),
-                        new NotIsGitlink( r ) );
+                        new NotIsGitlink( r, head ) );
         
         return !Iterables.isEmpty( allModifications );
     }
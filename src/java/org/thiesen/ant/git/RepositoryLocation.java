@@ -0,0 +1,184 @@
+/*
+ * $ Id $
+ * (c) Copyright 2009 Marcus Thiesen (marcus@thiesen.org)
+ *
+ *  This file is part of gitant.
+ *
+ *  gitant is free software: you can redistribute it and/or modify
+ *  it under the terms of the GNU General Public License as published by
+ *  the Free Software Foundation, either version 3 of the License, or
+ *  (at your option) any later version.
+ *
+ *  gitant is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *  GNU General Public License for more details.
+ *
+ *  You should have received a copy of the GNU General Public License
+ *  along with gitant.  If not, see <http://www.gnu.org/licenses/>.
+ *
+ */
+package org.thiesen.ant.git;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.apache.commons.lang.StringUtils;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryBuilder;
+import org.eclipse.jgit.lib.RepositoryCache.FileKey;
+import org.eclipse.jgit.util.FS;
+import org.eclipse.jgit.util.IO;
+import org.eclipse.jgit.util.RawParseUtils;
+
+/**
+ * Where the parts of a repository live on disk.
+ *
+ * Besides the classic <code>.git</code> directory this understands
+ * <code>.git</code> files ("gitdir: ..."), linked <code>git worktree</code>
+ * checkouts that keep their own HEAD and index but share the object store
+ * and refs of a common directory, and bare repositories without any
+ * working tree.
+ */
+final class RepositoryLocation {
+
+    private static final String GITDIR_PREFIX = "gitdir:";
+    private static final String COMMONDIR_FILE = "commondir";
+    private static final String GITDIR_FILE = "gitdir";
+    private static final String INDEX_FILE = "index";
+    private static final String REF_PREFIX = "ref:";
+
+    private final File _gitDir;
+    private final File _commonDir;
+    private final File _workTree;
+
+    private RepositoryLocation( final File gitDir, final File commonDir, final File workTree ) {
+        super();
+        _gitDir = gitDir;
+        _commonDir = commonDir;
+        _workTree = workTree;
+    }
+
+    static RepositoryLocation valueOf( final File dir ) throws IOException {
+        final File canonicalDir = dir.getCanonicalFile();
+
+        if ( canonicalDir.isFile() ) {
+            return fromGitDir( readGitDirFile( canonicalDir ), canonicalDir.getParentFile() );
+        }
+
+        final File dotGit = new File( canonicalDir, Constants.DOT_GIT );
+        if ( dotGit.isFile() ) {
+            return fromGitDir( readGitDirFile( dotGit ), canonicalDir );
+        }
+        if ( dotGit.isDirectory() ) {
+            return fromGitDir( dotGit, canonicalDir );
+        }
+
+        if ( Constants.DOT_GIT.equals( canonicalDir.getName() ) ) {
+            return fromGitDir( canonicalDir, canonicalDir.getParentFile() );
+        }
+
+        return fromGitDir( canonicalDir, null );
+    }
+
+    private static RepositoryLocation fromGitDir( final File gitDir, final File workTree ) throws IOException {
+        final File commonDirFile = new File( gitDir, COMMONDIR_FILE );
+        if ( commonDirFile.isFile() ) {
+            final File commonDir = resolve( gitDir, readFirstLine( commonDirFile ) );
+            final File backLink = new File( gitDir, GITDIR_FILE );
+            if ( workTree == null && backLink.isFile() ) {
+                // pointed at .git/worktrees/<name> directly, find the checkout it belongs to
+                return new RepositoryLocation( gitDir, commonDir, resolve( gitDir, readFirstLine( backLink ) ).getParentFile() );
+            }
+            return new RepositoryLocation( gitDir, commonDir, workTree );
+        }
+
+        if ( !FileKey.isGitRepository( gitDir, FS.DETECTED ) ) {
+            throw new IOException( "Not a git repository: " + gitDir );
+        }
+
+        return new RepositoryLocation( gitDir, gitDir, workTree );
+    }
+
+    private static File readGitDirFile( final File dotGitFile ) throws IOException {
+        final String line = readFirstLine( dotGitFile );
+        if ( !line.startsWith( GITDIR_PREFIX ) ) {
+            throw new IOException( "Invalid gitdir file: " + dotGitFile );
+        }
+        return resolve( dotGitFile.getParentFile(), line.substring( GITDIR_PREFIX.length() ).trim() );
+    }
+
+    private static String readFirstLine( final File file ) throws IOException {
+        final String content = RawParseUtils.decode( IO.readFully( file ) );
+        return StringUtils.trimToEmpty( StringUtils.substringBefore( content, "\n" ) );
+    }
+
+    private static File resolve( final File base, final String path ) throws IOException {
+        final File file = new File( path );
+        return ( file.isAbsolute() ? file : new File( base, path ) ).getCanonicalFile();
+    }
+
+    Repository build( final boolean bare ) throws IOException {
+        final RepositoryBuilder builder = new RepositoryBuilder()
+            .setGitDir( _commonDir )
+            .readEnvironment(); // scan environment GIT_* variables
+
+        if ( bare ) {
+            builder.setBare();
+        } else if ( _workTree != null ) {
+            builder.setWorkTree( _workTree ).setIndexFile( new File( _gitDir, INDEX_FILE ) );
+        }
+
+        return builder.setMustExist( true ).build();
+    }
+
+    boolean isLinked() {
+        return !_gitDir.equals( _commonDir );
+    }
+
+    /**
+     * Resolves HEAD of this checkout. For linked worktrees HEAD lives in the
+     * per-worktree directory while the ref it points to lives in the common
+     * directory, so JGit's own lookup would see the main checkout's HEAD.
+     */
+    ObjectId resolveHead( final Repository r ) throws IOException {
+        final ObjectId headId;
+        if ( isLinked() ) {
+            final String head = readFirstLine( new File( _gitDir, Constants.HEAD ) );
+            if ( head.startsWith( REF_PREFIX ) ) {
+                final Ref ref = r.getRef( head.substring( REF_PREFIX.length() ).trim() );
+                headId = ref == null ? null : ref.getObjectId();
+            } else {
+                headId = ObjectId.isId( head ) ? ObjectId.fromString( head ) : null;
+            }
+        } else {
+            headId = r.resolve( Constants.HEAD );
+        }
+
+        if ( headId == null ) {
+            throw new IOException( "Unable to resolve HEAD in " + _gitDir );
+        }
+        return headId;
+    }
+
+    String getBranch( final Repository r ) throws IOException {
+        if ( !isLinked() ) {
+            return r.getBranch();
+        }
+
+        final String head = readFirstLine( new File( _gitDir, Constants.HEAD ) );
+        if ( head.startsWith( REF_PREFIX ) ) {
+            return Repository.shortenRefName( head.substring( REF_PREFIX.length() ).trim() );
+        }
+        return head;
+    }
+
+    @Override
+    public String toString() {
+        return isLinked() ? _gitDir + " (objects in " + _commonDir + ")" : _gitDir.toString();
+    }
+
+}